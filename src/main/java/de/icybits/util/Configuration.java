@@ -193,6 +193,8 @@ public class Configuration implements Serializable {
 
 	private transient Configuration defaultConfiguration = null;
 
+	private transient ConfigurationMetrics metrics = null;
+
 	// ****************** //
 	// * field part end * //
 	// ****************** //
@@ -213,6 +215,24 @@ public class Configuration implements Serializable {
 		return this.defaultConfiguration;
 	}
 
+	/**
+	 * Set the {@link ConfigurationMetrics} which count the lookups of this
+	 * configuration. Lookups which fall back to the default configurations are
+	 * only counted by this configuration and not by the defaults. The metrics
+	 * are neither cloned nor serialized.
+	 * 
+	 * @param metrics
+	 *            the metrics to record the lookups or <code>null</code> to
+	 *            disable the recording.
+	 */
+	public void setMetrics(ConfigurationMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	public ConfigurationMetrics getMetrics() {
+		return this.metrics;
+	}
+
 	/**
 	 * Create a clone of this. Be aware that the map items are not cloned so
 	 * changes within items applies to both original and clone.
@@ -245,9 +265,21 @@ public class Configuration implements Serializable {
 	}
 
 	public Object get(String key) {
+		return get(key, 0, this.metrics);
+	}
+
+	/**
+	 * Walks the default configuration chain. The configuration which holds the
+	 * key records the lookup at the metrics of the configuration which was
+	 * asked first, so enabling metrics does not change the lookup itself.
+	 */
+	private Object get(String key, int fallbackDepth, ConfigurationMetrics metrics) {
 		if (this.defaultConfiguration != null && !this.map.containsKey(key))
-			return this.defaultConfiguration.get(key);
-		return this.map.get(key);
+			return this.defaultConfiguration.get(key, fallbackDepth + 1, metrics);
+		Object result = this.map.get(key);
+		if (metrics != null)
+			metrics.recordLookup(fallbackDepth, result != null);
+		return result;
 	}
 
 	public Object get(Enum<?> enumKey) {
@@ -286,8 +318,9 @@ public class Configuration implements Serializable {
 	}
 
 	public String getString(String key) {
-		if (get(key) instanceof String)
-			return (String) get(key);
+		Object object = get(key);
+		if (object instanceof String)
+			return (String) object;
 		return null;
 	}
 
@@ -310,8 +343,9 @@ public class Configuration implements Serializable {
 	}
 
 	public Integer getInteger(String key) {
-		if (get(key) instanceof Integer)
-			return (Integer) get(key);
+		Object object = get(key);
+		if (object instanceof Integer)
+			return (Integer) object;
 		return null;
 	}
 
@@ -331,8 +365,9 @@ public class Configuration implements Serializable {
 	}
 
 	public Boolean getBoolean(String key) {
-		if (get(key) instanceof Boolean)
-			return (Boolean) get(key);
+		Object object = get(key);
+		if (object instanceof Boolean)
+			return (Boolean) object;
 		return null;
 	}
 
@@ -352,8 +387,9 @@ public class Configuration implements Serializable {
 	}
 
 	public Double getDouble(String key) {
-		if (get(key) instanceof Double)
-			return (Double) get(key);
+		Object object = get(key);
+		if (object instanceof Double)
+			return (Double) object;
 		return null;
 	}
 
@@ -0,0 +1,97 @@
+package de.icybits.util;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the lookups of one or more {@link Configuration}s. The counters are
+ * {@link LongAdder}s, so an instance can stay enabled in production and may be
+ * shared between configurations and threads. To expose the counters via JMX
+ * register the instance at an MBeanServer, e.g.
+ * <code>ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name)</code>.
+ *
+ * @author Iceac Sarutobi
+ *
+ */
+public class ConfigurationMetrics implements ConfigurationMetricsMBean {
+
+	private final LongAdder lookups = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder fallbacks = new LongAdder();
+
+	private final LongAdder fallbackDepthSum = new LongAdder();
+
+	private final LongAccumulator maxFallbackDepth = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Record a single lookup.
+	 * 
+	 * @param fallbackDepth
+	 *            the count of default configurations which were asked.
+	 * @param found
+	 *            whether the lookup returned a value other than
+	 *            <code>null</code>.
+	 */
+	void recordLookup(int fallbackDepth, boolean found) {
+		lookups.increment();
+		if (!found)
+			misses.increment();
+		if (fallbackDepth > 0) {
+			fallbacks.increment();
+			fallbackDepthSum.add(fallbackDepth);
+			maxFallbackDepth.accumulate(fallbackDepth);
+		}
+	}
+
+	@Override
+	public long getLookupCount() {
+		return lookups.sum();
+	}
+
+	@Override
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	@Override
+	public long getFallbackCount() {
+		return fallbacks.sum();
+	}
+
+	@Override
+	public double getMissRate() {
+		long lookupCount = getLookupCount();
+		if (lookupCount == 0)
+			return 0;
+		return (double) getMissCount() / lookupCount;
+	}
+
+	@Override
+	public double getAverageFallbackDepth() {
+		long fallbackCount = getFallbackCount();
+		if (fallbackCount == 0)
+			return 0;
+		return (double) fallbackDepthSum.sum() / fallbackCount;
+	}
+
+	@Override
+	public long getMaxFallbackDepth() {
+		return maxFallbackDepth.get();
+	}
+
+	@Override
+	public void reset() {
+		lookups.reset();
+		misses.reset();
+		fallbacks.reset();
+		fallbackDepthSum.reset();
+		maxFallbackDepth.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "lookups = " + getLookupCount() + ", misses = " + getMissCount() + ", fallbacks = " + getFallbackCount() + ", max fallback depth = " + getMaxFallbackDepth();
+	}
+}
@@ -0,0 +1,48 @@
+package de.icybits.util;
+
+/**
+ * The JMX view of the {@link ConfigurationMetrics}.
+ *
+ * @author Iceac Sarutobi
+ *
+ */
+public interface ConfigurationMetricsMBean {
+
+	/**
+	 * @return The count of all lookups.
+	 */
+	long getLookupCount();
+
+	/**
+	 * @return The count of lookups which returned <code>null</code>.
+	 */
+	long getMissCount();
+
+	/**
+	 * @return The count of lookups which had to ask at least one default
+	 *         configuration.
+	 */
+	long getFallbackCount();
+
+	/**
+	 * @return The ratio of misses to lookups or 0 if there was no lookup.
+	 */
+	double getMissRate();
+
+	/**
+	 * @return The average count of default configurations asked by a fallback
+	 *         lookup or 0 if there was no fallback.
+	 */
+	double getAverageFallbackDepth();
+
+	/**
+	 * @return The maximum count of default configurations asked by a single
+	 *         lookup.
+	 */
+	long getMaxFallbackDepth();
+
+	/**
+	 * Reset all counters to 0.
+	 */
+	void reset();
+}
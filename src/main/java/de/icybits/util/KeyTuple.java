@@ -0,0 +1,127 @@
+package de.icybits.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An immutable combination of one key per dimension of a
+ * {@link MultidimensionalMatrix}. The hash code is computed on first use and
+ * cached, so a {@link KeyTuple} is cheap to create during scans and cheap to
+ * use as key of a map.
+ *
+ * @author Iceac Sarutobi
+ *
+ */
+public final class KeyTuple<K> {
+
+	private final Object[] keys;
+
+	/**
+	 * The cached hash code or 0 if it is not computed yet.
+	 */
+	private int hash;
+
+	private KeyTuple(Object[] keys) {
+		this.keys = keys;
+	}
+
+	/**
+	 * @param keys
+	 *            the key of every dimension.
+	 * @return A {@link KeyTuple} with a copy of the keys.
+	 *
+	 * @throws NullPointerException
+	 *             if the keys or one of the keys is <code>null</code>.
+	 */
+	@SafeVarargs
+	public static <K> KeyTuple<K> of(K... keys) {
+		if (keys == null)
+			throw new NullPointerException("keys must not be null!");
+		for (K key : keys) {
+			if (key == null)
+				throw new NullPointerException("Key must not be null!");
+		}
+		return wrap(Arrays.copyOf(keys, keys.length, Object[].class));
+	}
+
+	/**
+	 * Creates a {@link KeyTuple} which uses the given array without a copy or
+	 * null check. The array must not be changed afterwards.
+	 */
+	static <K> KeyTuple<K> wrap(Object[] keys) {
+		return new KeyTuple<>(keys);
+	}
+
+	/**
+	 * @return The internal key array, which must not be changed.
+	 */
+	Object[] keys() {
+		return this.keys;
+	}
+
+	/**
+	 * @return The count of keys.
+	 */
+	public int size() {
+		return keys.length;
+	}
+
+	/**
+	 * @param dimension
+	 *            the 0 based dimension index.
+	 * @return The key of the dimension.
+	 */
+	@SuppressWarnings("unchecked")
+	public K get(int dimension) {
+		return (K) keys[dimension];
+	}
+
+	/**
+	 * @return An unmodifiable {@link List} view of the keys.
+	 */
+	public List<K> asList() {
+		return new KeyList();
+	}
+
+	@Override
+	public int hashCode() {
+		int result = this.hash;
+		if (result == 0) {
+			result = Arrays.hashCode(keys);
+			this.hash = result;
+		}
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof KeyTuple))
+			return false;
+		KeyTuple<?> other = (KeyTuple<?>) obj;
+		if (hash != 0 && other.hash != 0 && hash != other.hash)
+			return false;
+		return Arrays.equals(keys, other.keys);
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(keys);
+	}
+
+	private class KeyList extends AbstractList<K> implements RandomAccess {
+
+		@Override
+		public K get(int index) {
+			return KeyTuple.this.get(index);
+		}
+
+		@Override
+		public int size() {
+			return KeyTuple.this.size();
+		}
+	}
+}
@@ -0,0 +1,335 @@
+package de.icybits.util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A bounded cache for values with one key per dimension, like the cells of a
+ * {@link MultidimensionalMatrix}. If the total weight of the values exceeds
+ * the maximum weight the least recently used values are evicted. Missing
+ * values can be computed by a loader. All methods are synchronized, except
+ * that the loader is called without holding the lock. Concurrent calls of
+ * {@link #get(Object...)} for the same keys wait for a single load, so the
+ * loader must not load the keys it is currently loading.
+ * <p>
+ * The weight is only the sum of the weigher results. The overhead of the
+ * cache itself, a map entry and a {@link KeyTuple} per value, is not part of
+ * the weight.
+ *
+ * @author Iceac Sarutobi
+ *
+ */
+public class MatrixCache<K, V> {
+
+	private final int dimensionCount;
+
+	/**
+	 * The values in the order of access, the least recently used first.
+	 */
+	private final LinkedHashMap<KeyTuple<K>, WeightedValue<V>> values = new LinkedHashMap<>(16, 0.75f, true);
+
+	private final long maximumWeight;
+
+	private final ToLongFunction<? super V> weigher;
+
+	private final Function<? super KeyTuple<K>, ? extends V> loader;
+
+	/**
+	 * The running loads. A load which is removed by a put or invalidation
+	 * before it finishes does not store its value.
+	 */
+	private final HashMap<KeyTuple<K>, FutureTask<V>> loading = new HashMap<>();
+
+	private long weight = 0;
+
+	private long hitCount = 0;
+
+	private long missCount = 0;
+
+	private long loadCount = 0;
+
+	private long evictionCount = 0;
+
+	/**
+	 * @param dimensionCount
+	 *            the number of dimensions of the keys.
+	 * @param maximumSize
+	 *            the maximum count of values.
+	 */
+	public MatrixCache(int dimensionCount, long maximumSize) {
+		this(dimensionCount, maximumSize, value -> 1, null);
+	}
+
+	/**
+	 * @param dimensionCount
+	 *            the number of dimensions of the keys.
+	 * @param maximumSize
+	 *            the maximum count of values.
+	 * @param loader
+	 *            the function to compute missing values or <code>null</code>.
+	 */
+	public MatrixCache(int dimensionCount, long maximumSize, Function<? super KeyTuple<K>, ? extends V> loader) {
+		this(dimensionCount, maximumSize, value -> 1, loader);
+	}
+
+	/**
+	 * @param dimensionCount
+	 *            the number of dimensions of the keys.
+	 * @param maximumWeight
+	 *            the maximum total weight of all values.
+	 * @param weigher
+	 *            the function to compute the weight of a value.
+	 * @param loader
+	 *            the function to compute missing values or <code>null</code>.
+	 */
+	public MatrixCache(int dimensionCount, long maximumWeight, ToLongFunction<? super V> weigher, Function<? super KeyTuple<K>, ? extends V> loader) {
+		super();
+		if (dimensionCount < 1)
+			throw new IllegalArgumentException("The minimum value of dimensionCount is 1, input = " + dimensionCount);
+		if (maximumWeight < 0)
+			throw new IllegalArgumentException("The minimum value of maximumWeight is 0, input = " + maximumWeight);
+		if (weigher == null)
+			throw new NullPointerException("weigher must not be null!");
+		this.dimensionCount = dimensionCount;
+		this.maximumWeight = maximumWeight;
+		this.weigher = weigher;
+		this.loader = loader;
+	}
+
+	/**
+	 * Returns the value of the keys. If there is no value it is computed by the
+	 * loader and stored in this cache. If the keys are already loaded by
+	 * another thread, this waits for that load.
+	 *
+	 * @param keys
+	 *            the key of every dimension.
+	 * @return The value or <code>null</code> if there is no value and no loader
+	 *         or the loader returned <code>null</code>.
+	 *
+	 * @throws IllegalStateException
+	 *             if the thread is interrupted while waiting for another load.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(K... keys) {
+		KeyTuple<K> key = toKey(keys);
+		FutureTask<V> task;
+		boolean owner = false;
+		synchronized (this) {
+			V value = getIfPresent(key);
+			if (value != null || loader == null)
+				return value;
+			task = loading.get(key);
+			if (task == null) {
+				task = new FutureTask<>(() -> loader.apply(key));
+				loading.put(key, task);
+				owner = true;
+			}
+		}
+		if (!owner)
+			return await(task);
+		V value = null;
+		try {
+			task.run();
+			value = await(task);
+		} finally {
+			finishLoad(key, task, value);
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the value of the keys without calling the loader.
+	 *
+	 * @param keys
+	 *            the key of every dimension.
+	 * @return The value or <code>null</code> if there is no value.
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized V getIfPresent(K... keys) {
+		return getIfPresent(toKey(keys));
+	}
+
+	private V getIfPresent(KeyTuple<K> key) {
+		WeightedValue<V> weightedValue = values.get(key);
+		if (weightedValue == null) {
+			missCount++;
+			return null;
+		}
+		hitCount++;
+		return weightedValue.value;
+	}
+
+	/**
+	 * Store the value and evict the least recently used values if the maximum
+	 * weight is exceeded.
+	 *
+	 * @param value
+	 *            the value or <code>null</code> to invalidate the keys.
+	 * @param keys
+	 *            the key of every dimension.
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized void put(V value, K... keys) {
+		if (value == null) {
+			invalidate(keys);
+		} else {
+			KeyTuple<K> key = toKey(keys);
+			loading.remove(key);
+			putInternal(value, key);
+		}
+	}
+
+	/**
+	 * Remove the value of the keys.
+	 *
+	 * @param keys
+	 *            the key of every dimension.
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized void invalidate(K... keys) {
+		KeyTuple<K> key = toKey(keys);
+		loading.remove(key);
+		WeightedValue<V> oldValue = values.remove(key);
+		if (oldValue != null)
+			weight -= oldValue.weight;
+	}
+
+	/**
+	 * Remove all values.
+	 */
+	public synchronized void invalidateAll() {
+		loading.clear();
+		values.clear();
+		weight = 0;
+	}
+
+	public synchronized int size() {
+		return values.size();
+	}
+
+	public synchronized long getWeight() {
+		return this.weight;
+	}
+
+	public long getMaximumWeight() {
+		return this.maximumWeight;
+	}
+
+	public synchronized long getHitCount() {
+		return this.hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return this.missCount;
+	}
+
+	public synchronized long getLoadCount() {
+		return this.loadCount;
+	}
+
+	public synchronized long getEvictionCount() {
+		return this.evictionCount;
+	}
+
+	/**
+	 * @return The ratio of hits to all lookups or 0 if there was no lookup.
+	 */
+	public synchronized double getHitRate() {
+		long lookupCount = hitCount + missCount;
+		if (lookupCount == 0)
+			return 0;
+		return (double) hitCount / lookupCount;
+	}
+
+	/**
+	 * Reset the hit, miss, load and eviction counts to 0.
+	 */
+	public synchronized void resetStatistics() {
+		hitCount = 0;
+		missCount = 0;
+		loadCount = 0;
+		evictionCount = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "size = " + size() + ", weight = " + weight + " / " + maximumWeight + ", hits = " + hitCount + ", misses = " + missCount + ", evictions = " + evictionCount;
+	}
+
+	/**
+	 * Store the loaded value unless the load was removed by a put or
+	 * invalidation in the meantime.
+	 */
+	private synchronized void finishLoad(KeyTuple<K> key, FutureTask<V> task, V value) {
+		if (loading.get(key) != task)
+			return;
+		loading.remove(key);
+		loadCount++;
+		if (value != null)
+			putInternal(value, key);
+	}
+
+	private static <V> V await(FutureTask<V> task) {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the loader", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	private void putInternal(V value, KeyTuple<K> key) {
+		long valueWeight = weigher.applyAsLong(value);
+		if (valueWeight < 0)
+			throw new IllegalArgumentException("The weight must not be negative, weight = " + valueWeight);
+		WeightedValue<V> oldValue = values.put(key, new WeightedValue<>(value, valueWeight));
+		if (oldValue != null)
+			weight -= oldValue.weight;
+		weight += valueWeight;
+		evict();
+	}
+
+	/**
+	 * Evict the least recently used values until the weight fits.
+	 */
+	private void evict() {
+		Iterator<WeightedValue<V>> iterator = values.values().iterator();
+		while (weight > maximumWeight && iterator.hasNext()) {
+			weight -= iterator.next().weight;
+			iterator.remove();
+			evictionCount++;
+		}
+	}
+
+	private KeyTuple<K> toKey(K[] keys) {
+		if (keys == null)
+			throw new NullPointerException("keys must not be null!");
+		if (keys.length != dimensionCount)
+			throw new IllegalArgumentException("keys length = " + keys.length + " must be equals dimension count = " + dimensionCount);
+		return KeyTuple.of(keys);
+	}
+
+	private static final class WeightedValue<V> {
+
+		private final V value;
+
+		private final long weight;
+
+		private WeightedValue(V value, long weight) {
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+}
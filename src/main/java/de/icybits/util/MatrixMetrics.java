@@ -0,0 +1,106 @@
+package de.icybits.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the reads and writes of a {@link MultidimensionalMatrix} and exposes
+ * its size. The counters are {@link LongAdder}s, so the metrics can stay
+ * enabled in production. The size values are read from the matrix without
+ * synchronization and are only approximate while the matrix is modified. To
+ * expose the metrics via JMX register the instance at an MBeanServer, e.g.
+ * <code>ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name)</code>.
+ *
+ * @author Iceac Sarutobi
+ *
+ * @see MultidimensionalMatrix#enableMetrics()
+ */
+public class MatrixMetrics implements MatrixMetricsMBean {
+
+	private final MultidimensionalMatrix<?, ?> matrix;
+
+	private final LongAdder reads = new LongAdder();
+
+	private final LongAdder readMisses = new LongAdder();
+
+	private final LongAdder writes = new LongAdder();
+
+	private final LongAdder removes = new LongAdder();
+
+	MatrixMetrics(MultidimensionalMatrix<?, ?> matrix) {
+		this.matrix = matrix;
+	}
+
+	void recordRead(boolean found) {
+		reads.increment();
+		if (!found)
+			readMisses.increment();
+	}
+
+	void recordWrite() {
+		writes.increment();
+	}
+
+	void recordRemove() {
+		removes.increment();
+	}
+
+	@Override
+	public long getReadCount() {
+		return reads.sum();
+	}
+
+	@Override
+	public long getReadMissCount() {
+		return readMisses.sum();
+	}
+
+	@Override
+	public double getReadMissRate() {
+		long readCount = getReadCount();
+		if (readCount == 0)
+			return 0;
+		return (double) getReadMissCount() / readCount;
+	}
+
+	@Override
+	public long getWriteCount() {
+		return writes.sum();
+	}
+
+	@Override
+	public long getRemoveCount() {
+		return removes.sum();
+	}
+
+	@Override
+	public int getCellCount() {
+		return matrix.getCellCount();
+	}
+
+	@Override
+	public int[] getDimensionKeyCounts() {
+		int[] result = new int[matrix.getDimensionCount()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = matrix.getDimensionKeyCount(i);
+		}
+		return result;
+	}
+
+	@Override
+	public long getEstimatedMemoryBytes() {
+		return matrix.estimateMemoryBytes();
+	}
+
+	@Override
+	public void reset() {
+		reads.reset();
+		readMisses.reset();
+		writes.reset();
+		removes.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "reads = " + getReadCount() + ", read misses = " + getReadMissCount() + ", writes = " + getWriteCount() + ", removes = " + getRemoveCount() + ", cells = " + getCellCount();
+	}
+}
@@ -0,0 +1,57 @@
+package de.icybits.util;
+
+/**
+ * The JMX view of the {@link MatrixMetrics}.
+ *
+ * @author Iceac Sarutobi
+ *
+ */
+public interface MatrixMetricsMBean {
+
+	/**
+	 * @return The count of all value reads.
+	 */
+	long getReadCount();
+
+	/**
+	 * @return The count of value reads which returned <code>null</code>.
+	 */
+	long getReadMissCount();
+
+	/**
+	 * @return The ratio of read misses to reads or 0 if there was no read.
+	 */
+	double getReadMissRate();
+
+	/**
+	 * @return The count of values which were set, including values which
+	 *         replaced an existing value.
+	 */
+	long getWriteCount();
+
+	/**
+	 * @return The count of values which were removed. Removing a key
+	 *         combination without a value is not counted.
+	 */
+	long getRemoveCount();
+
+	/**
+	 * @return The count of cells which contain a value.
+	 */
+	int getCellCount();
+
+	/**
+	 * @return The key count of every dimension.
+	 */
+	int[] getDimensionKeyCounts();
+
+	/**
+	 * @return A rough estimate of the bytes used by the matrix structure.
+	 */
+	long getEstimatedMemoryBytes();
+
+	/**
+	 * Reset all counters to 0.
+	 */
+	void reset();
+}
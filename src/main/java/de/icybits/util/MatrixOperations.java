@@ -0,0 +1,272 @@
+package de.icybits.util;
+
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Element-wise operations and reductions on numeric
+ * {@link MultidimensionalMatrix}es. Binary operations are applied to the cells
+ * which have a value in both matrices.
+ * <p>
+ * If both matrices have the same dimension keys in the same order and are
+ * dense enough, the values are copied into primitive arrays and combined in a
+ * simple counted loop. Otherwise the cells of the smaller matrix are joined
+ * with the other one by key lookup. The values stay boxed in the matrices, so
+ * every operation unboxes its operands and boxes its results.
+ *
+ * @author Iceac Sarutobi
+ *
+ */
+public final class MatrixOperations {
+
+	/**
+	 * The minimum density of both matrices to use the value arrays.
+	 */
+	private static final double ALIGNED_MIN_DENSITY = 0.1;
+
+	private MatrixOperations() {
+	}
+
+	public static <K> MultidimensionalMatrix<K, Double> add(MultidimensionalMatrix<K, ? extends Number> a, MultidimensionalMatrix<K, ? extends Number> b) {
+		return combine(a, b, (x, y) -> x + y);
+	}
+
+	public static <K> MultidimensionalMatrix<K, Double> subtract(MultidimensionalMatrix<K, ? extends Number> a, MultidimensionalMatrix<K, ? extends Number> b) {
+		return combine(a, b, (x, y) -> x - y);
+	}
+
+	public static <K> MultidimensionalMatrix<K, Double> multiply(MultidimensionalMatrix<K, ? extends Number> a, MultidimensionalMatrix<K, ? extends Number> b) {
+		return combine(a, b, (x, y) -> x * y);
+	}
+
+	public static <K> MultidimensionalMatrix<K, Double> divide(MultidimensionalMatrix<K, ? extends Number> a, MultidimensionalMatrix<K, ? extends Number> b) {
+		return combine(a, b, (x, y) -> x / y);
+	}
+
+	/**
+	 * Combine the cells which have a value in both matrices with the given
+	 * operator.
+	 *
+	 * @param a
+	 *            the left operand.
+	 * @param b
+	 *            the right operand.
+	 * @param operator
+	 *            the operator to combine two values.
+	 * @return A new {@link MultidimensionalMatrix} with the combined values.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the dimension counts are not equal.
+	 */
+	public static <K> MultidimensionalMatrix<K, Double> combine(MultidimensionalMatrix<K, ? extends Number> a, MultidimensionalMatrix<K, ? extends Number> b, DoubleBinaryOperator operator) {
+		AlignedOperands<K> operands = AlignedOperands.of(a, b);
+		if (operands != null) {
+			double[] x = operands.x;
+			double[] y = operands.y;
+			for (int i = 0; i < x.length; i++) {
+				x[i] = operator.applyAsDouble(x[i], y[i]);
+			}
+			return operands.createResult();
+		}
+		return join(a, b, operator);
+	}
+
+	public static <K> MultidimensionalMatrix<K, Double> scale(MultidimensionalMatrix<K, ? extends Number> matrix, double factor) {
+		if (isArrayFriendly(matrix)) {
+			Object[] values = matrix.toValueArray();
+			double[] x = toDoubleArray(values);
+			for (int i = 0; i < x.length; i++) {
+				x[i] = x[i] * factor;
+			}
+			return matrix.createAligned(toDoubleValues(x, values, values));
+		}
+		return map(matrix, x -> x * factor);
+	}
+
+	/**
+	 * Apply the operator to every cell with a value.
+	 *
+	 * @param matrix
+	 *            the operand.
+	 * @param operator
+	 *            the operator to apply.
+	 * @return A new {@link MultidimensionalMatrix} with the results.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K> MultidimensionalMatrix<K, Double> map(MultidimensionalMatrix<K, ? extends Number> matrix, DoubleUnaryOperator operator) {
+		MultidimensionalMatrix<K, Double> result = new MultidimensionalMatrix<>(matrix.getDimensionCount(), matrix.getComparator());
+		matrix.forEachCell((keys, value) -> result.setValue(operator.applyAsDouble(value.doubleValue()), (K[]) keys));
+		return result;
+	}
+
+	/**
+	 * Keep the values of the matrix where the mask contains
+	 * {@link Boolean#TRUE}.
+	 *
+	 * @param matrix
+	 *            the values.
+	 * @param mask
+	 *            the mask.
+	 * @return A new {@link MultidimensionalMatrix} with the masked values.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the dimension counts are not equal.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K, V> MultidimensionalMatrix<K, V> mask(MultidimensionalMatrix<K, V> matrix, MultidimensionalMatrix<K, Boolean> mask) {
+		if (isAligned(matrix, mask)) {
+			Object[] values = matrix.toValueArray();
+			Object[] maskValues = mask.toValueArray();
+			for (int i = 0; i < values.length; i++) {
+				if (!Boolean.TRUE.equals(maskValues[i]))
+					values[i] = null;
+			}
+			return matrix.createAligned(values);
+		}
+		MultidimensionalMatrix<K, V> result = new MultidimensionalMatrix<>(matrix.getDimensionCount(), matrix.getComparator());
+		if (matrix.getCellCount() <= mask.getCellCount()) {
+			matrix.forEachCell((keys, value) -> {
+				if (Boolean.TRUE.equals(mask.getValueInternal(keys)))
+					result.setValue(value, (K[]) keys);
+			});
+		} else {
+			mask.forEachCell((keys, maskValue) -> {
+				if (Boolean.TRUE.equals(maskValue))
+					result.setValue(matrix.getValueInternal(keys), (K[]) keys);
+			});
+		}
+		return result;
+	}
+
+	/**
+	 * @return The sum of all values or 0 if the matrix is empty.
+	 */
+	public static double sum(MultidimensionalMatrix<?, ? extends Number> matrix) {
+		double[] result = { 0 };
+		matrix.forEachValue(value -> result[0] += value.doubleValue());
+		return result[0];
+	}
+
+	/**
+	 * @return The minimum of all values or {@link Double#NaN} if the matrix is
+	 *         empty.
+	 */
+	public static double min(MultidimensionalMatrix<?, ? extends Number> matrix) {
+		if (matrix.getCellCount() == 0)
+			return Double.NaN;
+		double[] result = { Double.POSITIVE_INFINITY };
+		matrix.forEachValue(value -> result[0] = Math.min(result[0], value.doubleValue()));
+		return result[0];
+	}
+
+	/**
+	 * @return The maximum of all values or {@link Double#NaN} if the matrix is
+	 *         empty.
+	 */
+	public static double max(MultidimensionalMatrix<?, ? extends Number> matrix) {
+		if (matrix.getCellCount() == 0)
+			return Double.NaN;
+		double[] result = { Double.NEGATIVE_INFINITY };
+		matrix.forEachValue(value -> result[0] = Math.max(result[0], value.doubleValue()));
+		return result[0];
+	}
+
+	/**
+	 * @return The average of all values or {@link Double#NaN} if the matrix is
+	 *         empty.
+	 */
+	public static double average(MultidimensionalMatrix<?, ? extends Number> matrix) {
+		if (matrix.getCellCount() == 0)
+			return Double.NaN;
+		return sum(matrix) / matrix.getCellCount();
+	}
+
+	private static <K> boolean isAligned(MultidimensionalMatrix<K, ?> a, MultidimensionalMatrix<K, ?> b) {
+		if (a.getDimensionCount() != b.getDimensionCount())
+			throw new IllegalArgumentException("dimension count = " + a.getDimensionCount() + " must be equals dimension count = " + b.getDimensionCount());
+		return isArrayFriendly(a) && isArrayFriendly(b) && a.hasSameDimensionKeys(b);
+	}
+
+	private static boolean isArrayFriendly(MultidimensionalMatrix<?, ?> matrix) {
+		return matrix.getCellCount() > 0 && matrix.getDensity() >= ALIGNED_MIN_DENSITY && matrix.getKeyCombinationCount() <= Integer.MAX_VALUE - 8;
+	}
+
+	/**
+	 * Missing values become 0, the value array keeps track of them.
+	 */
+	private static double[] toDoubleArray(Object[] values) {
+		double[] result = new double[values.length];
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null)
+				result[i] = ((Number) values[i]).doubleValue();
+		}
+		return result;
+	}
+
+	private static Object[] toDoubleValues(double[] results, Object[] aValues, Object[] bValues) {
+		Object[] values = new Object[results.length];
+		for (int i = 0; i < results.length; i++) {
+			if (aValues[i] != null && bValues[i] != null)
+				values[i] = results[i];
+		}
+		return values;
+	}
+
+	/**
+	 * The value arrays of two aligned matrices. The results of an operation are
+	 * written into x.
+	 */
+	private static final class AlignedOperands<K> {
+
+		private final MultidimensionalMatrix<K, ?> a;
+
+		private final Object[] aValues;
+
+		private final Object[] bValues;
+
+		private final double[] x;
+
+		private final double[] y;
+
+		private AlignedOperands(MultidimensionalMatrix<K, ?> a, MultidimensionalMatrix<K, ?> b) {
+			this.a = a;
+			this.aValues = a.toValueArray();
+			this.bValues = b.toValueArray();
+			this.x = toDoubleArray(aValues);
+			this.y = toDoubleArray(bValues);
+		}
+
+		/**
+		 * @return The operands or <code>null</code> if the matrices are not
+		 *         aligned.
+		 */
+		private static <K> AlignedOperands<K> of(MultidimensionalMatrix<K, ? extends Number> a, MultidimensionalMatrix<K, ? extends Number> b) {
+			if (!isAligned(a, b))
+				return null;
+			return new AlignedOperands<>(a, b);
+		}
+
+		private MultidimensionalMatrix<K, Double> createResult() {
+			return a.createAligned(toDoubleValues(x, aValues, bValues));
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <K> MultidimensionalMatrix<K, Double> join(MultidimensionalMatrix<K, ? extends Number> a, MultidimensionalMatrix<K, ? extends Number> b, DoubleBinaryOperator operator) {
+		MultidimensionalMatrix<K, Double> result = new MultidimensionalMatrix<>(a.getDimensionCount(), a.getComparator());
+		if (a.getCellCount() <= b.getCellCount()) {
+			a.forEachCell((keys, x) -> {
+				Number y = b.getValueInternal(keys);
+				if (y != null)
+					result.setValue(operator.applyAsDouble(x.doubleValue(), y.doubleValue()), (K[]) keys);
+			});
+		} else {
+			b.forEachCell((keys, y) -> {
+				Number x = a.getValueInternal(keys);
+				if (x != null)
+					result.setValue(operator.applyAsDouble(x.doubleValue(), y.doubleValue()), (K[]) keys);
+			});
+		}
+		return result;
+	}
+}
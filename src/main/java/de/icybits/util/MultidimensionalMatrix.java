@@ -5,7 +5,11 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * @author Iceac Sarutobi
@@ -13,14 +17,58 @@ import java.util.List;
  */
 public class MultidimensionalMatrix<K, V> {
 
+	private static final long REFERENCE_BYTES = 4;
+
+	private static final long ARRAY_HEADER_BYTES = 16;
+
+	private static final long ARRAY_LIST_BYTES = 24;
+
+	private static final long HASH_MAP_BYTES = 48;
+
+	private static final long HASH_MAP_NODE_BYTES = 32;
+
+	private static final long HASH_SET_BYTES = 16;
+
+	private static final long HASH_MAP_DEFAULT_CAPACITY = 16;
+
+	private static final long INTEGER_BYTES = 16;
+
+	private static final long MAX_DENSE_SIZE = Integer.MAX_VALUE - 8;
+
 	private final int dimensionCount;
 
 	private ArrayList<ArrayList<K>> dimensionKeys = new ArrayList<ArrayList<K>>();
 
+	/**
+	 * The keys of every dimension as hash set, so the check for a new key does
+	 * not scan the key list.
+	 */
+	private ArrayList<HashSet<K>> dimensionKeySets = new ArrayList<HashSet<K>>();
+
 	private HashMap<K, Object> matrix = new HashMap<K, Object>();
 
 	private Comparator<K> comparator = null;
 
+	private int cellCount = 0;
+
+	private int mapCount = 1;
+
+	private int mapEntryCount = 0;
+
+	private MatrixMetrics metrics = null;
+
+	private StorageLayout storageLayout = StorageLayout.NESTED_MAP;
+
+	private double autoLayoutDensity = 0;
+
+	private Object[] denseValues = null;
+
+	private int[] denseCapacities = null;
+
+	private ArrayList<HashMap<K, Integer>> denseSlots = null;
+
+	private ArrayList<ArrayList<K>> denseSlotKeys = null;
+
 	/**
 	 * @param dimensionCount
 	 *            the number of dimensionCount in this
@@ -44,6 +92,7 @@ public class MultidimensionalMatrix<K, V> {
 		this.dimensionCount = dimensionCount;
 		for (int i = 0; i < dimensionCount; i++) {
 			dimensionKeys.add(new ArrayList<K>());
+			dimensionKeySets.add(new HashSet<K>());
 		}
 		this.comparator = comparator;
 	}
@@ -70,6 +119,199 @@ public class MultidimensionalMatrix<K, V> {
 		return this.dimensionCount;
 	}
 
+	/**
+	 * Returns how much cells of this {@link MultidimensionalMatrix} contain a
+	 * value.
+	 * 
+	 * @return The count of cells with a value.
+	 */
+	public int getCellCount() {
+		return this.cellCount;
+	}
+
+	/**
+	 * Returns the product of all {@link #getDimensionKeyCount(int)} values,
+	 * which is the count of all possible key combinations.
+	 * 
+	 * @return The count of all key combinations or {@link Long#MAX_VALUE} if
+	 *         the count exceeds a long.
+	 */
+	public long getKeyCombinationCount() {
+		long result = 1;
+		for (ArrayList<K> keyList : dimensionKeys) {
+			if (keyList.isEmpty())
+				return 0;
+			if (result > Long.MAX_VALUE / keyList.size())
+				return Long.MAX_VALUE;
+			result *= keyList.size();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the ratio of cells with a value to all key combinations.
+	 * 
+	 * @return The density between 0 and 1.
+	 * 
+	 * @see #getCellCount()
+	 * @see #getKeyCombinationCount()
+	 */
+	public double getDensity() {
+		long keyCombinationCount = getKeyCombinationCount();
+		if (keyCombinationCount == 0)
+			return 0;
+		return (double) cellCount / keyCombinationCount;
+	}
+
+	/**
+	 * Returns a rough estimate of the bytes used by the internal structure of
+	 * this {@link MultidimensionalMatrix} in its current {@link StorageLayout}.
+	 * 
+	 * @return The estimated memory footprint in bytes.
+	 * 
+	 * @see #estimateMemoryBytes(StorageLayout)
+	 */
+	public long estimateMemoryBytes() {
+		return estimateMemoryBytes(storageLayout);
+	}
+
+	/**
+	 * Returns a rough estimate of the bytes the internal structure of this
+	 * {@link MultidimensionalMatrix} would use in the given
+	 * {@link StorageLayout}, assuming a 64 bit JVM with compressed references.
+	 * The keys and values themselves are not included.
+	 * 
+	 * @param layout
+	 *            the {@link StorageLayout} to estimate.
+	 * @return The estimated memory footprint in bytes or {@link Long#MAX_VALUE}
+	 *         if the layout can not hold all key combinations.
+	 */
+	public long estimateMemoryBytes(StorageLayout layout) {
+		if (layout == null)
+			throw new NullPointerException("layout must not be null!");
+		long bytes = 0;
+		for (ArrayList<K> keyList : dimensionKeys) {
+			bytes += estimateArrayListBytes(keyList.size());
+			bytes += estimateHashSetBytes(keyList.size());
+		}
+		if (layout == StorageLayout.NESTED_MAP) {
+			if (storageLayout == StorageLayout.NESTED_MAP)
+				return bytes + estimateNestedMapBytes(mapCount, mapEntryCount);
+			return bytes + estimateNestedMapBytesOfDenseArray();
+		}
+		int[] capacities = storageLayout == StorageLayout.DENSE_ARRAY ? denseCapacities : getFittingDenseCapacities();
+		long size = getDenseSize(capacities);
+		if (size > MAX_DENSE_SIZE)
+			return Long.MAX_VALUE;
+		bytes += ARRAY_HEADER_BYTES + size * REFERENCE_BYTES;
+		for (ArrayList<K> keyList : dimensionKeys) {
+			long keyCount = keyList.size();
+			bytes += HASH_MAP_BYTES + ARRAY_HEADER_BYTES + estimateHashMapTableSize(keyCount) * REFERENCE_BYTES;
+			bytes += keyCount * (HASH_MAP_NODE_BYTES + INTEGER_BYTES);
+			bytes += estimateArrayListBytes(keyCount);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns the {@link StorageLayout} with the lowest
+	 * {@link #estimateMemoryBytes(StorageLayout)}.
+	 * 
+	 * @return The cheapest {@link StorageLayout}.
+	 */
+	public StorageLayout getCheapestStorageLayout() {
+		StorageLayout result = storageLayout;
+		for (StorageLayout layout : StorageLayout.values()) {
+			if (estimateMemoryBytes(layout) < estimateMemoryBytes(result))
+				result = layout;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the {@link StorageLayout} which is used to store the values.
+	 * 
+	 * @return The current {@link StorageLayout}.
+	 */
+	public StorageLayout getStorageLayout() {
+		return this.storageLayout;
+	}
+
+	/**
+	 * Convert the storage of this {@link MultidimensionalMatrix} to the given
+	 * {@link StorageLayout}. The content of the matrix is not changed.
+	 * 
+	 * @param layout
+	 *            the new {@link StorageLayout}.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the layout is {@link StorageLayout#DENSE_ARRAY} and there
+	 *             are too much key combinations for an array.
+	 */
+	public void setStorageLayout(StorageLayout layout) {
+		if (layout == null)
+			throw new NullPointerException("layout must not be null!");
+		if (layout == storageLayout)
+			return;
+		if (layout == StorageLayout.NESTED_MAP)
+			toNestedMap();
+		else if (!toDenseArray())
+			throw new IllegalStateException("Too much key combinations for a dense array, key combination count = " + getKeyCombinationCount());
+	}
+
+	/**
+	 * Set the density at which this {@link MultidimensionalMatrix} converts
+	 * itself to {@link StorageLayout#DENSE_ARRAY}. If the density falls below
+	 * the half of it the matrix converts back to
+	 * {@link StorageLayout#NESTED_MAP}. The dense array is usually the cheaper
+	 * layout above a density of about 0.1. The check is done on every
+	 * {@link #setValue(Object, Object...)}.
+	 * 
+	 * @param density
+	 *            the density between 0 and 1 or 0 to disable the automatic
+	 *            conversion.
+	 */
+	public void setAutoLayoutDensity(double density) {
+		if (!(0 <= density && density <= 1))
+			throw new IllegalArgumentException("density must be between 0 and 1, input = " + density);
+		this.autoLayoutDensity = density;
+		checkAutoLayout();
+	}
+
+	public double getAutoLayoutDensity() {
+		return this.autoLayoutDensity;
+	}
+
+	/**
+	 * Enable the recording of {@link MatrixMetrics} for this
+	 * {@link MultidimensionalMatrix}. If the metrics are already enabled the
+	 * existing metrics are returned.
+	 * 
+	 * @return The metrics of this {@link MultidimensionalMatrix}.
+	 */
+	public MatrixMetrics enableMetrics() {
+		if (this.metrics == null)
+			this.metrics = new MatrixMetrics(this);
+		return this.metrics;
+	}
+
+	/**
+	 * Disable the recording of {@link MatrixMetrics}.
+	 */
+	public void disableMetrics() {
+		this.metrics = null;
+	}
+
+	/**
+	 * Returns the {@link MatrixMetrics} of this {@link MultidimensionalMatrix}
+	 * or <code>null</code> if the metrics are not enabled.
+	 * 
+	 * @return The metrics or <code>null</code>.
+	 */
+	public MatrixMetrics getMetrics() {
+		return this.metrics;
+	}
+
 	/**
 	 * Returns whether the dimension keys are sorted.
 	 * 
@@ -142,6 +384,8 @@ public class MultidimensionalMatrix<K, V> {
 			throw new IndexOutOfBoundsException("dimension is out of range, dimension = " + dimension + ", dimension range = 0 - " + (getDimensionCount() - 1));
 		if (key == null)
 			throw new NullPointerException("Key must not be null!");
+		if (!dimensionKeySets.get(dimension).contains(key))
+			return -1;
 		ArrayList<K> keyList = dimensionKeys.get(dimension);
 		return keyList.indexOf(key);
 	}
@@ -189,7 +433,10 @@ public class MultidimensionalMatrix<K, V> {
 		for (int i = 0; i < indexes.length; i++) {
 			result[i] = getDimensionKey(i, indexes[i]);
 		}
-		return getValueInternal(result);
+		V value = getValueInternal(result);
+		if (metrics != null)
+			metrics.recordRead(value != null);
+		return value;
 	}
 
 	/**
@@ -213,11 +460,44 @@ public class MultidimensionalMatrix<K, V> {
 			throw new NullPointerException("keys must not be null!");
 		if (keys.length != getDimensionCount())
 			throw new IndexOutOfBoundsException("keys length = " + keys.length + " must be equals dimension count = " + getDimensionCount());
-		return getValueInternal((Object[]) keys);
+		V value = getValueInternal((Object[]) keys);
+		if (metrics != null)
+			metrics.recordRead(value != null);
+		return value;
+	}
+
+	/**
+	 * Returns the value of the given key combination. Or <code>null</code> if
+	 * there is no value.
+	 * 
+	 * @param key
+	 *            the key combination.
+	 * @return the value of the key combination.
+	 * 
+	 * @throws NullPointerException
+	 *             if the key is null
+	 * @throws IndexOutOfBoundsException
+	 *             if the size of the key is not equals dimension count.
+	 */
+	public V getValueByKey(KeyTuple<K> key) {
+		if (key == null)
+			throw new NullPointerException("key must not be null!");
+		if (key.size() != getDimensionCount())
+			throw new IndexOutOfBoundsException("key size = " + key.size() + " must be equals dimension count = " + getDimensionCount());
+		V value = getValueInternal(key.keys());
+		if (metrics != null)
+			metrics.recordRead(value != null);
+		return value;
 	}
 
 	@SuppressWarnings("unchecked")
-	private V getValueInternal(Object... keys) {
+	V getValueInternal(Object... keys) {
+		if (storageLayout == StorageLayout.DENSE_ARRAY) {
+			int offset = getDenseOffset(keys);
+			if (offset < 0)
+				return null;
+			return (V) denseValues[offset];
+		}
 		Object result = matrix.get(keys[0]);
 		for (int i = 1; i < keys.length; i++) {
 			if (result == null)
@@ -234,36 +514,93 @@ public class MultidimensionalMatrix<K, V> {
 			throw new NullPointerException("keys must not be null!");
 		if (keys.length != getDimensionCount())
 			throw new IllegalArgumentException("keys length = " + keys.length + " must be equals dimension count = " + getDimensionCount());
-		HashMap<K, Object> resultMap = matrix;
+		setValueInternal(value, keys);
+	}
+
+	public void setValue(V value, KeyTuple<K> key) {
+		if (key == null)
+			throw new NullPointerException("key must not be null!");
+		if (key.size() != getDimensionCount())
+			throw new IllegalArgumentException("key size = " + key.size() + " must be equals dimension count = " + getDimensionCount());
+		setValueInternal(value, key.keys());
+	}
+
+	private void setValueInternal(V value, Object[] keys) {
+		for (Object key : keys) {
+			if (key == null)
+				throw new NullPointerException("Key must not be null!");
+		}
+		int previousCellCount = cellCount;
+		if (storageLayout == StorageLayout.DENSE_ARRAY && !setDenseValue(value, keys))
+			toNestedMap();
+		if (storageLayout == StorageLayout.NESTED_MAP) {
+			if (value != null)
+				putNestedValue(value, keys, true);
+			else
+				removeNestedValue(matrix, 0, keys);
+		}
+		if (metrics != null) {
+			if (value != null)
+				metrics.recordWrite();
+			else if (cellCount < previousCellCount)
+				metrics.recordRemove();
+		}
+		checkAutoLayout();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void putNestedValue(Object value, Object[] keys, boolean addDimensionKeys) {
+		HashMap<Object, Object> resultMap = (HashMap<Object, Object>) matrix;
 		for (int dimensionIndex = 0; dimensionIndex < keys.length - 1; dimensionIndex++) {
-			if (resultMap == null)
-				break;
-			HashMap<K, Object> tmpMap = (HashMap<K, Object>) resultMap.get(keys[dimensionIndex]);
-			if (value != null) {
-				if (tmpMap == null) {
-					tmpMap = new HashMap<>();
-					resultMap.put(keys[dimensionIndex], tmpMap);
-				}
-				addDimensionKey(dimensionIndex, keys[dimensionIndex]);
+			HashMap<Object, Object> tmpMap = (HashMap<Object, Object>) resultMap.get(keys[dimensionIndex]);
+			if (tmpMap == null) {
+				tmpMap = new HashMap<>();
+				resultMap.put(keys[dimensionIndex], tmpMap);
+				mapCount++;
+				mapEntryCount++;
+				if (addDimensionKeys)
+					addDimensionKey(dimensionIndex, (K) keys[dimensionIndex]);
 			}
 			resultMap = tmpMap;
 		}
-		if (resultMap != null) {
-			int lastDimensionIndex = keys.length - 1;
-			resultMap.put(keys[lastDimensionIndex], value);
-			addDimensionKey(lastDimensionIndex, keys[lastDimensionIndex]);
+		int lastDimensionIndex = keys.length - 1;
+		if (resultMap.put(keys[lastDimensionIndex], value) == null) {
+			cellCount++;
+			mapEntryCount++;
+			if (addDimensionKeys)
+				addDimensionKey(lastDimensionIndex, (K) keys[lastDimensionIndex]);
+		}
+	}
+
+	/**
+	 * Removes the value and all maps which become empty by the removal.
+	 */
+	private void removeNestedValue(HashMap<?, ?> map, int dimension, Object[] keys) {
+		if (dimension == keys.length - 1) {
+			if (map.remove(keys[dimension]) != null) {
+				cellCount--;
+				mapEntryCount--;
+			}
+			return;
+		}
+		HashMap<?, ?> subMap = (HashMap<?, ?>) map.get(keys[dimension]);
+		if (subMap == null)
+			return;
+		removeNestedValue(subMap, dimension + 1, keys);
+		if (subMap.isEmpty()) {
+			map.remove(keys[dimension]);
+			mapCount--;
+			mapEntryCount--;
 		}
 	}
 
 	private void addDimensionKey(int dimension, K key) {
-		int dimIndex = getDimensionIndex(dimension, key);
-		if (dimIndex < 0) {
+		if (dimensionKeySets.get(dimension).add(key)) {
+			ArrayList<K> keyList = dimensionKeys.get(dimension);
 			if (comparator != null) {
-				ArrayList<K> keyList = dimensionKeys.get(dimension);
-				keyList.add(key);
-				keyList.sort(comparator);
+				int index = Collections.binarySearch(keyList, key, comparator);
+				keyList.add(index < 0 ? -index - 1 : index, key);
 			} else {
-				ArrayList<K> keyList = dimensionKeys.get(dimension);
 				keyList.add(key);
 			}
 		}
@@ -274,58 +611,519 @@ public class MultidimensionalMatrix<K, V> {
 		setValue(null, keys);
 	}
 
+	public void removeValue(KeyTuple<K> key) {
+		setValue(null, key);
+	}
+
 	public void clear() {
 		matrix.clear();
+		cellCount = 0;
+		mapCount = 1;
+		mapEntryCount = 0;
 		for (ArrayList<K> keyList : dimensionKeys) {
 			keyList.clear();
 		}
+		for (HashSet<K> keySet : dimensionKeySets) {
+			keySet.clear();
+		}
+		if (storageLayout == StorageLayout.DENSE_ARRAY) {
+			storageLayout = StorageLayout.NESTED_MAP;
+			toDenseArray();
+		}
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * Returns an {@link Entry} for every key combination, including the
+	 * combinations without a value.
+	 * 
+	 * @return A list with all key combinations and their values.
+	 */
 	public List<Entry<K, V>> getCombinations() {
 		List<Entry<K, V>> list = new ArrayList<>();
-		for (K key : getDimensionKeys(0))
-			fillCombinations(1, list, key);
+		if (getKeyCombinationCount() == 0)
+			return list;
+		int[] indexes = new int[dimensionCount];
+		int dimension;
+		do {
+			Object[] keys = new Object[dimensionCount];
+			for (int i = 0; i < dimensionCount; i++) {
+				keys[i] = dimensionKeys.get(i).get(indexes[i]);
+			}
+			list.add(new Entry<>(getValueInternal(keys), KeyTuple.<K> wrap(keys)));
+			dimension = dimensionCount - 1;
+			while (dimension > -1 && ++indexes[dimension] == dimensionKeys.get(dimension).size()) {
+				indexes[dimension] = 0;
+				dimension--;
+			}
+		} while (dimension > -1);
 		return list;
 	}
 
-	@SuppressWarnings({ "rawtypes", "unchecked" })
-	private void fillCombinations(int dimension, List<Entry<K, V>> list, K... keys) {
-		if (dimension < getDimensionCount()) {
-			for (K key : getDimensionKeys(dimension)) {
-				K[] subKeys = Arrays.copyOf(keys, keys.length + 1);
-				subKeys[subKeys.length - 1] = key;
-				fillCombinations(dimension + 1, list, subKeys);
+	/**
+	 * Calls the consumer for every cell with a value. To avoid an allocation
+	 * per cell the same {@link Entry} is reused for every call, so it is only
+	 * valid during the call. Use {@link Entry#copy()} to keep it.
+	 * 
+	 * @param consumer
+	 *            the consumer of the entries.
+	 */
+	public void forEachEntry(Consumer<? super Entry<K, V>> consumer) {
+		Entry<K, V> entry = new Entry<>();
+		forEachCell((keys, value) -> {
+			entry.reuse(keys, value);
+			consumer.accept(entry);
+		});
+	}
+
+	Comparator<K> getComparator() {
+		return this.comparator;
+	}
+
+	boolean hasSameDimensionKeys(MultidimensionalMatrix<K, ?> other) {
+		return dimensionKeys.equals(other.dimensionKeys);
+	}
+
+	/**
+	 * Calls the consumer for every cell with a value. The key array is reused
+	 * for every call.
+	 */
+	@SuppressWarnings("unchecked")
+	void forEachCell(BiConsumer<Object[], ? super V> consumer) {
+		Object[] keys = new Object[dimensionCount];
+		if (storageLayout == StorageLayout.NESTED_MAP) {
+			forEachNestedCell(matrix, 0, keys, consumer);
+			return;
+		}
+		int[] slots = new int[dimensionCount];
+		for (int offset = 0; offset < denseValues.length; offset++) {
+			if (denseValues[offset] != null) {
+				getDenseSlots(offset, denseCapacities, slots);
+				for (int i = 0; i < dimensionCount; i++) {
+					keys[i] = denseSlotKeys.get(i).get(slots[i]);
+				}
+				consumer.accept(keys, (V) denseValues[offset]);
+			}
+		}
+	}
+
+	/**
+	 * Calls the consumer for every value without tracking the keys.
+	 */
+	@SuppressWarnings("unchecked")
+	void forEachValue(Consumer<? super V> consumer) {
+		if (storageLayout == StorageLayout.NESTED_MAP) {
+			forEachCell((keys, value) -> consumer.accept(value));
+			return;
+		}
+		for (Object value : denseValues) {
+			if (value != null)
+				consumer.accept((V) value);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void forEachNestedCell(HashMap<?, ?> map, int dimension, Object[] keys, BiConsumer<Object[], ? super V> consumer) {
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			keys[dimension] = entry.getKey();
+			if (dimension == dimensionCount - 1)
+				consumer.accept(keys, (V) entry.getValue());
+			else
+				forEachNestedCell((HashMap<?, ?>) entry.getValue(), dimension + 1, keys, consumer);
+		}
+	}
+
+	/**
+	 * Returns the values in a row-major array over the dimension key indexes,
+	 * so two matrices with the same dimension keys have the same value
+	 * positions.
+	 * 
+	 * @return The value array or <code>null</code> if there are too much key
+	 *         combinations for an array.
+	 */
+	Object[] toValueArray() {
+		long size = getKeyCombinationCount();
+		if (size > MAX_DENSE_SIZE)
+			return null;
+		if (storageLayout == StorageLayout.DENSE_ARRAY && denseSlotKeys.equals(dimensionKeys) && getDenseSize(denseCapacities) == size)
+			return denseValues.clone();
+		Object[] values = new Object[(int) size];
+		ArrayList<HashMap<Object, Integer>> indexes = new ArrayList<>();
+		for (ArrayList<K> keyList : dimensionKeys) {
+			HashMap<Object, Integer> index = new HashMap<>();
+			for (int i = 0; i < keyList.size(); i++) {
+				index.put(keyList.get(i), i);
 			}
-		} else {
-			list.add(new Entry(getValueByKey(keys), keys));
+			indexes.add(index);
 		}
+		forEachCell((keys, value) -> {
+			int offset = 0;
+			for (int i = 0; i < keys.length; i++) {
+				offset = offset * dimensionKeys.get(i).size() + indexes.get(i).get(keys[i]);
+			}
+			values[offset] = value;
+		});
+		return values;
 	}
 
+	/**
+	 * Creates a {@link MultidimensionalMatrix} with the dimension keys of this
+	 * and the given values in the order of {@link #toValueArray()}. The new
+	 * matrix uses the cheapest {@link StorageLayout} for its values.
+	 */
+	<R> MultidimensionalMatrix<K, R> createAligned(Object[] values) {
+		MultidimensionalMatrix<K, R> result = new MultidimensionalMatrix<>(dimensionCount, comparator);
+		for (int i = 0; i < dimensionCount; i++) {
+			result.dimensionKeys.get(i).addAll(dimensionKeys.get(i));
+			result.dimensionKeySets.get(i).addAll(dimensionKeySets.get(i));
+		}
+		if (!result.toDenseArray() || values.length != result.denseValues.length)
+			throw new IllegalArgumentException("values length = " + values.length + " must be equals key combination count = " + getKeyCombinationCount());
+		result.denseValues = values;
+		for (Object value : values) {
+			if (value != null)
+				result.cellCount++;
+		}
+		if (result.getCheapestStorageLayout() == StorageLayout.NESTED_MAP)
+			result.toNestedMap();
+		return result;
+	}
+
+	private void checkAutoLayout() {
+		if (autoLayoutDensity <= 0)
+			return;
+		if (storageLayout == StorageLayout.NESTED_MAP && getDensity() >= autoLayoutDensity)
+			toDenseArray();
+		else if (storageLayout == StorageLayout.DENSE_ARRAY && getDensity() < autoLayoutDensity / 2)
+			toNestedMap();
+	}
+
+	/**
+	 * The dense array is a row-major array over the key slots of every
+	 * dimension. A key keeps its slot until the matrix is cleared, so sorting
+	 * the dimension keys does not move the values. Every dimension has a
+	 * capacity of slots which is doubled if a new key does not fit anymore.
+	 */
+	private boolean toDenseArray() {
+		int[] capacities = getFittingDenseCapacities();
+		long size = getDenseSize(capacities);
+		if (size > MAX_DENSE_SIZE)
+			return false;
+		denseSlots = new ArrayList<>();
+		denseSlotKeys = new ArrayList<>();
+		for (ArrayList<K> keyList : dimensionKeys) {
+			HashMap<K, Integer> slots = new HashMap<>();
+			for (int i = 0; i < keyList.size(); i++) {
+				slots.put(keyList.get(i), i);
+			}
+			denseSlots.add(slots);
+			denseSlotKeys.add(new ArrayList<>(keyList));
+		}
+		denseCapacities = capacities;
+		denseValues = new Object[(int) size];
+		fillDenseArray(matrix, 0, 0);
+		matrix = new HashMap<>();
+		mapCount = 1;
+		mapEntryCount = 0;
+		storageLayout = StorageLayout.DENSE_ARRAY;
+		return true;
+	}
+
+	private void fillDenseArray(HashMap<?, ?> map, int dimension, int offset) {
+		HashMap<K, Integer> slots = denseSlots.get(dimension);
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			int subOffset = offset * denseCapacities[dimension] + slots.get(entry.getKey());
+			if (dimension == dimensionCount - 1)
+				denseValues[subOffset] = entry.getValue();
+			else
+				fillDenseArray((HashMap<?, ?>) entry.getValue(), dimension + 1, subOffset);
+		}
+	}
+
+	private void toNestedMap() {
+		if (storageLayout == StorageLayout.NESTED_MAP)
+			return;
+		Object[] values = denseValues;
+		storageLayout = StorageLayout.NESTED_MAP;
+		matrix = new HashMap<>();
+		cellCount = 0;
+		mapCount = 1;
+		mapEntryCount = 0;
+		int[] slots = new int[dimensionCount];
+		Object[] keys = new Object[dimensionCount];
+		for (int offset = 0; offset < values.length; offset++) {
+			if (values[offset] != null) {
+				getDenseSlots(offset, denseCapacities, slots);
+				for (int i = 0; i < dimensionCount; i++) {
+					keys[i] = denseSlotKeys.get(i).get(slots[i]);
+				}
+				putNestedValue(values[offset], keys, false);
+			}
+		}
+		denseValues = null;
+		denseCapacities = null;
+		denseSlots = null;
+		denseSlotKeys = null;
+	}
+
+	/**
+	 * @return The offset in the dense array or -1 if a key has no slot.
+	 */
+	private int getDenseOffset(Object[] keys) {
+		int offset = 0;
+		for (int i = 0; i < keys.length; i++) {
+			Integer slot = denseSlots.get(i).get(keys[i]);
+			if (slot == null)
+				return -1;
+			offset = offset * denseCapacities[i] + slot;
+		}
+		return offset;
+	}
+
+	private void getDenseSlots(int offset, int[] capacities, int[] slots) {
+		for (int i = slots.length - 1; i > -1; i--) {
+			slots[i] = offset % capacities[i];
+			offset /= capacities[i];
+		}
+	}
+
+	/**
+	 * @return <code>false</code> if the keys do not fit into the dense array.
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean setDenseValue(V value, Object[] keys) {
+		int offset = getDenseOffset(keys);
+		if (offset < 0) {
+			if (value == null)
+				return true;
+			for (int i = 0; i < keys.length; i++) {
+				if (!addDenseKey(i, (K) keys[i]))
+					return false;
+			}
+			offset = getDenseOffset(keys);
+		}
+		Object previous = denseValues[offset];
+		denseValues[offset] = value;
+		if (previous == null && value != null)
+			cellCount++;
+		else if (previous != null && value == null)
+			cellCount--;
+		return true;
+	}
+
+	private boolean addDenseKey(int dimension, K key) {
+		HashMap<K, Integer> slots = denseSlots.get(dimension);
+		if (slots.containsKey(key))
+			return true;
+		int slot = slots.size();
+		if (slot == denseCapacities[dimension]) {
+			if (slot > MAX_DENSE_SIZE / 2)
+				return false;
+			int[] capacities = denseCapacities.clone();
+			capacities[dimension] = slot * 2;
+			if (!resizeDenseArray(capacities))
+				return false;
+		}
+		slots.put(key, slot);
+		denseSlotKeys.get(dimension).add(key);
+		addDimensionKey(dimension, key);
+		return true;
+	}
+
+	private boolean resizeDenseArray(int[] capacities) {
+		long size = getDenseSize(capacities);
+		if (size > MAX_DENSE_SIZE)
+			return false;
+		Object[] values = new Object[(int) size];
+		int[] slots = new int[dimensionCount];
+		for (int offset = 0; offset < denseValues.length; offset++) {
+			if (denseValues[offset] != null) {
+				getDenseSlots(offset, denseCapacities, slots);
+				int newOffset = 0;
+				for (int i = 0; i < dimensionCount; i++) {
+					newOffset = newOffset * capacities[i] + slots[i];
+				}
+				values[newOffset] = denseValues[offset];
+			}
+		}
+		denseValues = values;
+		denseCapacities = capacities;
+		return true;
+	}
+
+	private int[] getFittingDenseCapacities() {
+		int[] capacities = new int[dimensionCount];
+		for (int i = 0; i < dimensionCount; i++) {
+			capacities[i] = Math.max(1, getDimensionKeyCount(i));
+		}
+		return capacities;
+	}
+
+	private static long getDenseSize(int[] capacities) {
+		long size = 1;
+		for (int capacity : capacities) {
+			size *= capacity;
+			if (size > MAX_DENSE_SIZE)
+				return Long.MAX_VALUE;
+		}
+		return size;
+	}
+
+	/**
+	 * Counts the maps and map entries a nested map layout of the dense array
+	 * would need. Every distinct non empty key prefix is one map.
+	 */
+	private long estimateNestedMapBytesOfDenseArray() {
+		long[] strides = new long[dimensionCount];
+		long stride = 1;
+		for (int i = dimensionCount - 1; i > -1; i--) {
+			strides[i] = stride;
+			stride *= denseCapacities[i];
+		}
+		long[] lastPrefixes = new long[dimensionCount];
+		Arrays.fill(lastPrefixes, -1);
+		long subMapCount = 0;
+		for (int offset = 0; offset < denseValues.length; offset++) {
+			if (denseValues[offset] != null) {
+				for (int i = 0; i < dimensionCount - 1; i++) {
+					long prefix = offset / strides[i];
+					if (prefix != lastPrefixes[i]) {
+						lastPrefixes[i] = prefix;
+						subMapCount++;
+					}
+				}
+			}
+		}
+		return estimateNestedMapBytes(1 + subMapCount, subMapCount + cellCount);
+	}
+
+	private static long estimateNestedMapBytes(long mapCount, long mapEntryCount) {
+		long bytes = mapCount * (HASH_MAP_BYTES + ARRAY_HEADER_BYTES);
+		bytes += Math.max(mapCount * HASH_MAP_DEFAULT_CAPACITY, mapEntryCount * 4 / 3) * REFERENCE_BYTES;
+		bytes += mapEntryCount * HASH_MAP_NODE_BYTES;
+		return bytes;
+	}
+
+	private static long estimateHashMapTableSize(long entryCount) {
+		long tableSize = HASH_MAP_DEFAULT_CAPACITY;
+		while (tableSize * 3 / 4 < entryCount) {
+			tableSize *= 2;
+		}
+		return tableSize;
+	}
+
+	private static long estimateArrayListBytes(long size) {
+		return ARRAY_LIST_BYTES + ARRAY_HEADER_BYTES + size * REFERENCE_BYTES;
+	}
+
+	private static long estimateHashSetBytes(long size) {
+		return HASH_SET_BYTES + HASH_MAP_BYTES + ARRAY_HEADER_BYTES + estimateHashMapTableSize(size) * REFERENCE_BYTES + size * HASH_MAP_NODE_BYTES;
+	}
+
+	/**
+	 * The layouts to store the values of a {@link MultidimensionalMatrix}.
+	 */
+	public enum StorageLayout {
+		/**
+		 * A map per key prefix. Only cells with a value use memory.
+		 */
+		NESTED_MAP,
+		/**
+		 * One array with a slot for every key combination. Cheap for dense
+		 * matrices and fast to iterate.
+		 */
+		DENSE_ARRAY
+	}
+
+	/**
+	 * A key combination and its value. Entries created by
+	 * {@link MultidimensionalMatrix#forEachEntry(Consumer)} are reused for every
+	 * cell, use {@link #copy()} to keep them.
+	 */
 	public static class Entry<K, V> {
-		private List<K> keys;
+		private KeyTuple<K> key;
 		private V value;
 
+		/**
+		 * The key array of a reused entry, <code>null</code> otherwise.
+		 */
+		private Object[] reusedKeys;
+
+		/**
+		 * @param value
+		 *            the value.
+		 * @param keys
+		 *            the key of every dimension.
+		 * 
+		 * @throws NullPointerException
+		 *             if the keys or one of the keys is <code>null</code>.
+		 */
 		@SuppressWarnings("unchecked")
 		public Entry(V value, K... keys) {
-			this.keys = new ArrayList<K>();
-			for (K key : keys) {
-				this.keys.add(key);
-			}
+			this(value, KeyTuple.of(keys));
+		}
+
+		Entry(V value, KeyTuple<K> key) {
+			this.key = key;
+			this.value = value;
+		}
+
+		/**
+		 * Creates a reusable entry for {@link MultidimensionalMatrix#forEachEntry(Consumer)}.
+		 */
+		Entry() {
+		}
+
+		void reuse(Object[] keys, V value) {
+			this.reusedKeys = keys;
 			this.value = value;
+			this.key = null;
+		}
+
+		public KeyTuple<K> getKey() {
+			if (key == null)
+				key = KeyTuple.wrap(reusedKeys.clone());
+			return this.key;
 		}
 
+		/**
+		 * @return An unmodifiable {@link List} view of the keys.
+		 */
 		public List<K> getKeys() {
-			return this.keys;
+			return getKey().asList();
+		}
+
+		/**
+		 * Returns the key of the given dimension without creating a
+		 * {@link KeyTuple}.
+		 * 
+		 * @param dimension
+		 *            the 0 based dimension index.
+		 * @return The key of the dimension.
+		 */
+		@SuppressWarnings("unchecked")
+		public K getKey(int dimension) {
+			if (key != null)
+				return key.get(dimension);
+			return (K) this.reusedKeys[dimension];
 		}
 
 		public V getValue() {
 			return this.value;
 		}
 
+		/**
+		 * @return An {@link Entry} which does not change if this is a reused
+		 *         entry.
+		 */
+		public Entry<K, V> copy() {
+			return new Entry<>(value, getKey());
+		}
+
 		@Override
 		public String toString() {
-			return keys + " " + value;
+			if (key != null)
+				return key + " " + value;
+			return Arrays.toString(reusedKeys) + " " + value;
 		}
 	}
-}
\ No newline at end of file
+}
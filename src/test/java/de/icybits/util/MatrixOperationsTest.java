@@ -0,0 +1,132 @@
+package de.icybits.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import de.icybits.util.MultidimensionalMatrix.StorageLayout;
+
+public class MatrixOperationsTest {
+
+	@Test
+	public void testAlignedOperations() {
+		MultidimensionalMatrix<Integer, Integer> a = createMatrix(10, 1);
+		MultidimensionalMatrix<Integer, Integer> b = createMatrix(10, 2);
+		b.removeValue(3, 4);
+		MultidimensionalMatrix<Integer, Double> sum = MatrixOperations.add(a, b);
+		MultidimensionalMatrix<Integer, Double> difference = MatrixOperations.subtract(a, b);
+		MultidimensionalMatrix<Integer, Double> product = MatrixOperations.multiply(a, b);
+		MultidimensionalMatrix<Integer, Double> quotient = MatrixOperations.divide(a, b);
+		assertEquals(StorageLayout.DENSE_ARRAY, sum.getStorageLayout());
+		assertEquals(99, sum.getCellCount());
+		assertNull(sum.getValueByKey(3, 4));
+		for (int i = 0; i < 10; i++) {
+			for (int j = 0; j < 10; j++) {
+				if (i == 3 && j == 4)
+					continue;
+				int x = i * 10 + j + 1;
+				int y = 2 * (i * 10 + j + 1);
+				assertEquals(x + y, sum.getValueByKey(i, j), 0);
+				assertEquals(x - y, difference.getValueByKey(i, j), 0);
+				assertEquals((double) x * y, product.getValueByKey(i, j), 0);
+				assertEquals((double) x / y, quotient.getValueByKey(i, j), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testSparseAlignedResult() {
+		MultidimensionalMatrix<Integer, Integer> matrix = createMatrix(20, 1);
+		MultidimensionalMatrix<Integer, Boolean> mask = new MultidimensionalMatrix<>(2);
+		for (int i = 0; i < 20; i++) {
+			for (int j = 0; j < 20; j++) {
+				mask.setValue(i == j, i, j);
+			}
+		}
+		MultidimensionalMatrix<Integer, Integer> result = MatrixOperations.mask(matrix, mask);
+		assertEquals(StorageLayout.NESTED_MAP, result.getStorageLayout());
+		assertEquals(20, result.getCellCount());
+		for (int i = 0; i < 20; i++) {
+			assertEquals(Integer.valueOf(i * 20 + i + 1), result.getValueByKey(i, i));
+		}
+		assertNull(result.getValueByKey(0, 1));
+	}
+
+	@Test
+	public void testJoin() {
+		MultidimensionalMatrix<Integer, Integer> a = new MultidimensionalMatrix<>(2);
+		MultidimensionalMatrix<Integer, Double> b = new MultidimensionalMatrix<>(2);
+		for (int i = 0; i < 5; i++) {
+			a.setValue(i, i, i);
+			b.setValue(i * 0.5, i + 3, i + 3);
+		}
+		b.setValue(1.5, 4, 0);
+		MultidimensionalMatrix<Integer, Double> product = MatrixOperations.multiply(a, b);
+		assertEquals(2, product.getCellCount());
+		assertEquals(0.0, product.getValueByKey(3, 3), 0);
+		assertEquals(2.0, product.getValueByKey(4, 4), 0);
+		MultidimensionalMatrix<Integer, Double> combined = MatrixOperations.combine(b, a, Math::max);
+		assertEquals(3.0, combined.getValueByKey(3, 3), 0);
+		assertEquals(4.0, combined.getValueByKey(4, 4), 0);
+		MultidimensionalMatrix<Integer, Boolean> mask = new MultidimensionalMatrix<>(2);
+		mask.setValue(true, 1, 1);
+		mask.setValue(false, 2, 2);
+		mask.setValue(true, 9, 9);
+		MultidimensionalMatrix<Integer, Integer> masked = MatrixOperations.mask(a, mask);
+		assertEquals(1, masked.getCellCount());
+		assertEquals(Integer.valueOf(1), masked.getValueByKey(1, 1));
+	}
+
+	@Test
+	public void testScaleAndMap() {
+		MultidimensionalMatrix<Integer, Integer> dense = createMatrix(4, 1);
+		MultidimensionalMatrix<Integer, Double> scaled = MatrixOperations.scale(dense, 0.5);
+		assertEquals(16, scaled.getCellCount());
+		assertEquals(8.0, scaled.getValueByKey(3, 3), 0);
+		MultidimensionalMatrix<Integer, Integer> sparse = new MultidimensionalMatrix<>(2);
+		sparse.setValue(4, 0, 0);
+		sparse.setValue(6, 100, 100);
+		for (int i = 1; i < 50; i++) {
+			sparse.setValue(i, i, 100 - i);
+		}
+		scaled = MatrixOperations.scale(sparse, 2);
+		assertEquals(51, scaled.getCellCount());
+		assertEquals(12.0, scaled.getValueByKey(100, 100), 0);
+		MultidimensionalMatrix<Integer, Double> mapped = MatrixOperations.map(sparse, Math::sqrt);
+		assertEquals(2.0, mapped.getValueByKey(0, 0), 0);
+	}
+
+	@Test
+	public void testReductions() {
+		MultidimensionalMatrix<Integer, Integer> matrix = createMatrix(3, 1);
+		assertEquals(45.0, MatrixOperations.sum(matrix), 0);
+		assertEquals(1.0, MatrixOperations.min(matrix), 0);
+		assertEquals(9.0, MatrixOperations.max(matrix), 0);
+		assertEquals(5.0, MatrixOperations.average(matrix), 0);
+		MultidimensionalMatrix<Integer, Integer> empty = new MultidimensionalMatrix<>(2);
+		assertEquals(0.0, MatrixOperations.sum(empty), 0);
+		assertEquals(Double.NaN, MatrixOperations.min(empty), 0);
+		assertEquals(Double.NaN, MatrixOperations.max(empty), 0);
+		assertEquals(Double.NaN, MatrixOperations.average(empty), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDimensionCountMismatch() {
+		MatrixOperations.add(createMatrix(2, 1), new MultidimensionalMatrix<Integer, Integer>(3));
+	}
+
+	/**
+	 * @return A matrix with size x size cells and the values factor * (1 ..
+	 *         size * size) in row-major order.
+	 */
+	private static MultidimensionalMatrix<Integer, Integer> createMatrix(int size, int factor) {
+		MultidimensionalMatrix<Integer, Integer> matrix = new MultidimensionalMatrix<>(2);
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				matrix.setValue(factor * (i * size + j + 1), i, j);
+			}
+		}
+		return matrix;
+	}
+}
@@ -0,0 +1,190 @@
+package de.icybits.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.icybits.util.MultidimensionalMatrix.StorageLayout;
+
+public class MultidimensionalMatrixTest {
+
+	@Test
+	public void testRoundTripConversion() {
+		MultidimensionalMatrix<Integer, Integer> matrix = new MultidimensionalMatrix<>(3);
+		Map<List<Integer>, Integer> reference = new HashMap<>();
+		for (int i = 0; i < 40; i++) {
+			Integer[] keys = { i % 5, i % 3, i % 7 };
+			matrix.setValue(i, keys);
+			reference.put(Arrays.asList(keys), i);
+		}
+		assertContent(reference, matrix);
+		matrix.setStorageLayout(StorageLayout.DENSE_ARRAY);
+		assertEquals(StorageLayout.DENSE_ARRAY, matrix.getStorageLayout());
+		assertContent(reference, matrix);
+		matrix.setStorageLayout(StorageLayout.NESTED_MAP);
+		assertEquals(StorageLayout.NESTED_MAP, matrix.getStorageLayout());
+		assertContent(reference, matrix);
+	}
+
+	@Test
+	public void testDenseCapacityGrowth() {
+		MultidimensionalMatrix<Integer, Integer> matrix = new MultidimensionalMatrix<>(2);
+		matrix.setStorageLayout(StorageLayout.DENSE_ARRAY);
+		Map<List<Integer>, Integer> reference = new HashMap<>();
+		for (int i = 0; i < 50; i++) {
+			for (int j = 0; j < i % 9; j++) {
+				matrix.setValue(i * 100 + j, i, j);
+				reference.put(Arrays.asList(i, j), i * 100 + j);
+			}
+		}
+		assertEquals(StorageLayout.DENSE_ARRAY, matrix.getStorageLayout());
+		assertEquals(50 - 6, matrix.getDimensionKeyCount(0));
+		assertEquals(8, matrix.getDimensionKeyCount(1));
+		assertContent(reference, matrix);
+	}
+
+	@Test
+	public void testSortedDimensionsInDenseLayout() {
+		MultidimensionalMatrix<Integer, String> matrix = new MultidimensionalMatrix<>(2, Comparator.<Integer> naturalOrder());
+		matrix.setStorageLayout(StorageLayout.DENSE_ARRAY);
+		for (int i = 9; i > -1; i--) {
+			matrix.setValue(i + "/" + (9 - i), i, 9 - i);
+		}
+		for (int i = 0; i < 10; i++) {
+			assertEquals(Integer.valueOf(i), matrix.getDimensionKey(0, i));
+			assertEquals(Integer.valueOf(i), matrix.getDimensionKey(1, i));
+			assertEquals(i + "/" + (9 - i), matrix.getValueByIndex(i, 9 - i));
+		}
+		matrix.setComparator(Comparator.<Integer> reverseOrder());
+		assertEquals(Integer.valueOf(9), matrix.getDimensionKey(0, 0));
+		assertEquals("9/0", matrix.getValueByIndex(0, 9));
+		assertEquals("9/0", matrix.getValueByKey(9, 0));
+	}
+
+	@Test
+	public void testCellCountAndDensityAfterRemovals() {
+		for (StorageLayout layout : StorageLayout.values()) {
+			MultidimensionalMatrix<Integer, Integer> matrix = new MultidimensionalMatrix<>(2);
+			matrix.setStorageLayout(layout);
+			for (int i = 0; i < 4; i++) {
+				for (int j = 0; j < 5; j++) {
+					matrix.setValue(i * j, i, j);
+				}
+			}
+			assertEquals(20, matrix.getCellCount());
+			assertEquals(1.0, matrix.getDensity(), 0);
+			matrix.removeValue(0, 0);
+			matrix.removeValue(0, 0);
+			matrix.removeValue(1, 1);
+			matrix.removeValue(7, 7);
+			assertEquals(18, matrix.getCellCount());
+			assertEquals(18.0 / 20, matrix.getDensity(), 1e-9);
+			assertNull(matrix.getValueByKey(0, 0));
+			matrix.clear();
+			assertEquals(0, matrix.getCellCount());
+			assertEquals(0.0, matrix.getDensity(), 0);
+		}
+	}
+
+	@Test
+	public void testAutoLayout() {
+		MultidimensionalMatrix<Integer, Integer> matrix = new MultidimensionalMatrix<>(2);
+		matrix.setAutoLayoutDensity(0.6);
+		matrix.setValue(0, 0, 0);
+		assertEquals(StorageLayout.DENSE_ARRAY, matrix.getStorageLayout());
+		matrix.setValue(11, 1, 1);
+		matrix.setValue(22, 2, 2);
+		assertEquals(StorageLayout.DENSE_ARRAY, matrix.getStorageLayout());
+		matrix.setValue(33, 3, 3);
+		assertEquals(StorageLayout.NESTED_MAP, matrix.getStorageLayout());
+		int[][] keys = { { 0, 1 }, { 1, 0 }, { 0, 2 }, { 2, 0 }, { 1, 2 } };
+		for (int[] key : keys) {
+			matrix.setValue(key[0] * 10 + key[1], key[0], key[1]);
+		}
+		assertEquals(StorageLayout.NESTED_MAP, matrix.getStorageLayout());
+		matrix.setValue(21, 2, 1);
+		assertEquals(StorageLayout.DENSE_ARRAY, matrix.getStorageLayout());
+		for (int i = 0; i < 4; i++) {
+			assertEquals(Integer.valueOf(i * 11), matrix.getValueByKey(i, i));
+		}
+		assertEquals(Integer.valueOf(21), matrix.getValueByKey(2, 1));
+	}
+
+	@Test
+	public void testCheapestStorageLayout() {
+		MultidimensionalMatrix<Integer, Integer> matrix = new MultidimensionalMatrix<>(2);
+		for (int i = 0; i < 100; i++) {
+			matrix.setValue(i, i, i);
+		}
+		assertEquals(StorageLayout.NESTED_MAP, matrix.getCheapestStorageLayout());
+		for (int i = 0; i < 100; i++) {
+			for (int j = 0; j < 100; j++) {
+				matrix.setValue(i, i, j);
+			}
+		}
+		assertEquals(StorageLayout.DENSE_ARRAY, matrix.getCheapestStorageLayout());
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void testNullKeyInDenseLayout() {
+		MultidimensionalMatrix<String, Integer> matrix = new MultidimensionalMatrix<>(2);
+		matrix.setStorageLayout(StorageLayout.DENSE_ARRAY);
+		try {
+			matrix.setValue(1, "a", null);
+		} finally {
+			assertEquals(0, matrix.getCellCount());
+			assertEquals(0, matrix.getDimensionKeyCount(0));
+		}
+	}
+
+	@Test
+	public void testRandomOperationsAgainstHashMap() {
+		Random random = new Random(1);
+		for (int round = 0; round < 50; round++) {
+			MultidimensionalMatrix<Integer, Integer> matrix = new MultidimensionalMatrix<>(3, round % 2 == 0 ? null : Comparator.<Integer> naturalOrder());
+			if (round % 3 == 0)
+				matrix.setAutoLayoutDensity(0.2);
+			Map<List<Integer>, Integer> reference = new HashMap<>();
+			for (int i = 0; i < 300; i++) {
+				Integer[] keys = { random.nextInt(6), random.nextInt(5), random.nextInt(4) };
+				int operation = random.nextInt(10);
+				if (operation < 6) {
+					matrix.setValue(i, keys);
+					reference.put(Arrays.asList(keys), i);
+				} else if (operation < 8) {
+					matrix.removeValue(keys);
+					reference.remove(Arrays.asList(keys));
+				} else if (operation == 8 && round % 3 == 1) {
+					matrix.setStorageLayout(random.nextBoolean() ? StorageLayout.DENSE_ARRAY : StorageLayout.NESTED_MAP);
+				} else if (random.nextInt(50) == 0) {
+					matrix.clear();
+					reference.clear();
+				}
+				assertContent(reference, matrix);
+			}
+		}
+	}
+
+	private static void assertContent(Map<List<Integer>, Integer> reference, MultidimensionalMatrix<Integer, Integer> matrix) {
+		assertEquals(reference.size(), matrix.getCellCount());
+		for (Map.Entry<List<Integer>, Integer> entry : reference.entrySet()) {
+			assertEquals(entry.getValue(), matrix.getValueByKey(KeyTuple.of(entry.getKey().toArray(new Integer[0]))));
+		}
+		int[] count = { 0 };
+		matrix.forEachEntry(entry -> {
+			assertEquals(reference.get(entry.getKeys()), entry.getValue());
+			count[0]++;
+		});
+		assertEquals(reference.size(), count[0]);
+		long combinationCount = matrix.getCombinations().stream().filter(entry -> entry.getValue() != null).count();
+		assertEquals(reference.size(), combinationCount);
+	}
+}